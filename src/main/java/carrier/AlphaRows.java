@@ -0,0 +1,43 @@
+package carrier;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Alpha channel of the rows already read but not yet written back. Rows are only kept while the carrier
+ * has a writer, and their buffers are reused once written, so memory stays bounded by the rows in flight.
+ */
+final class AlphaRows {
+
+    private final byte[] discarded;
+    private final Queue<byte[]> pending = new ArrayDeque<>();
+    private final Queue<byte[]> free = new ArrayDeque<>();
+
+    AlphaRows(int width) {
+        this.discarded = new byte[width];
+    }
+
+    /**
+     * @param keep Whether the row will be written back
+     * @return Buffer to hold the alpha of the row just read
+     */
+    byte[] next(boolean keep) {
+        if (!keep) {
+            return discarded;
+        }
+        byte[] alpha = free.isEmpty() ? new byte[discarded.length] : free.remove();
+        pending.add(alpha);
+        return alpha;
+    }
+
+    /**
+     * @return Alpha of the oldest row not yet written back
+     */
+    byte[] take() {
+        return pending.remove();
+    }
+
+    void release(byte[] alpha) {
+        free.add(alpha);
+    }
+}
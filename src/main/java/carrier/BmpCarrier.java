@@ -0,0 +1,78 @@
+package carrier;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Uncompressed BMP. Everything from the pixel data offset to the end of the file is used as pixel bytes,
+ * row padding included, so images hidden before carriers were streamed still decode the same.
+ */
+final class BmpCarrier extends Carrier {
+
+    private static final int HEADER_SIZE = 14;
+    private static final int CHUNK_SIZE = 8192; // Rows are not needed, the pixel data is read in fixed chunks
+
+    private final byte[] header;
+    private long remaining;
+
+    BmpCarrier(InputStream input, String path) throws IOException {
+        this(input, readHeader(input), new File(path).length());
+    }
+
+    private BmpCarrier(InputStream input, byte[] header, long fileSize) {
+        super(input, fileSize - header.length, CHUNK_SIZE);
+        this.header = header;
+        this.remaining = fileSize - header.length;
+    }
+
+    private static byte[] readHeader(InputStream input) throws IOException {
+        byte[] fileHeader = input.readNBytes(HEADER_SIZE);
+        if (fileHeader.length < HEADER_SIZE) {
+            throw new EOFException("Truncated BMP header");
+        }
+
+        // Get the pixel data starting offset from the BMP header (bytes 10 to 13)
+        int pixelDataOffset = ((fileHeader[10] & 0xFF)) |
+                ((fileHeader[11] & 0xFF) << 8) |
+                ((fileHeader[12] & 0xFF) << 16) |
+                ((fileHeader[13] & 0xFF) << 24);
+        if (pixelDataOffset < HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid BMP pixel data offset: " + pixelDataOffset);
+        }
+
+        byte[] header = new byte[pixelDataOffset];
+        System.arraycopy(fileHeader, 0, header, 0, HEADER_SIZE);
+        if (input.readNBytes(header, HEADER_SIZE, pixelDataOffset - HEADER_SIZE) < pixelDataOffset - HEADER_SIZE) {
+            throw new EOFException("Truncated BMP header");
+        }
+        return header;
+    }
+
+    @Override
+    int readRow(byte[] row) throws IOException {
+        int length = (int) Math.min(row.length, remaining);
+        if (input.readNBytes(row, 0, length) < length) {
+            throw new EOFException("Truncated BMP pixel data");
+        }
+        remaining -= length;
+        return length;
+    }
+
+    @Override
+    void writeHeader(OutputStream out) throws IOException {
+        out.write(header);
+    }
+
+    @Override
+    void writeRow(OutputStream out, byte[] row, int length) throws IOException {
+        out.write(row, 0, length);
+    }
+
+    @Override
+    void writeTrailer(OutputStream out) {
+        // The pixel data runs until the end of the file
+    }
+}
@@ -0,0 +1,157 @@
+package carrier;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Image used to hide data, read one row at a time.
+ * The pixel bytes are exposed as a flat stream of colour channels in BMP order (Blue, Green, Red),
+ * whatever the order used by the underlying file format, so the LSB methods behave the same on every format.
+ */
+public abstract sealed class Carrier implements Closeable permits BmpCarrier, PngCarrier, PpmCarrier, TgaCarrier {
+
+    protected final InputStream input;
+    private final long pixelBytes;
+    private final byte[] row;
+    private int rowPosition;
+    private int rowLimit;
+    private long bytesRead;
+    private CarrierWriter writer;
+
+    Carrier(InputStream input, long pixelBytes, int rowLength) {
+        this.input = input;
+        this.pixelBytes = pixelBytes;
+        this.row = new byte[rowLength];
+    }
+
+    /**
+     * Opens an image to be used as a carrier, detecting its format from the file signature
+     * (BMP, PNG and PPM) or from its extension (TGA, which has no signature)
+     * @param path Path to the image
+     * @return The carrier, positioned at the first pixel byte
+     * @throws IOException If there's an error reading the image
+     */
+    public static Carrier open(String path) throws IOException {
+        InputStream input = new BufferedInputStream(new FileInputStream(path));
+        try {
+            input.mark(8);
+            byte[] signature = input.readNBytes(8);
+            input.reset();
+
+            if (signature.length >= 2 && signature[0] == 'B' && signature[1] == 'M') {
+                return new BmpCarrier(input, path);
+            }
+            if (signature.length == 8 && (signature[0] & 0xFF) == 0x89 && signature[1] == 'P' && signature[2] == 'N' && signature[3] == 'G') {
+                return new PngCarrier(input);
+            }
+            if (signature.length >= 2 && signature[0] == 'P' && signature[1] == '6') {
+                return new PpmCarrier(input);
+            }
+            if (path.toLowerCase(Locale.ROOT).endsWith(".tga")) {
+                return new TgaCarrier(input);
+            }
+            throw new IllegalArgumentException("Unsupported carrier format: " + path);
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Number of pixel bytes available to hide data
+     */
+    public long pixelBytes() {
+        return pixelBytes;
+    }
+
+    /**
+     * Reads the next pixel bytes of the carrier
+     * @param buffer Buffer to fill
+     * @param offset Start offset in the buffer
+     * @param length Number of bytes to read
+     * @return Number of bytes read, less than length only when the end of the pixel data is reached
+     * @throws IOException If there's an error reading the image
+     */
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            if (rowPosition == rowLimit) {
+                if (bytesRead == pixelBytes) {
+                    break;
+                }
+                rowLimit = readRow(row);
+                rowPosition = 0;
+                bytesRead += rowLimit;
+            }
+            int count = Math.min(length - read, rowLimit - rowPosition);
+            System.arraycopy(row, rowPosition, buffer, offset + read, count);
+            rowPosition += count;
+            read += count;
+        }
+        return read;
+    }
+
+    /**
+     * Creates a copy of this carrier with modified pixel bytes. Every pixel byte read from the carrier
+     * must be written back, in the same order, before closing the writer. The writer must be created before
+     * reading any pixel byte
+     * @param outputPath Path for the output image, in the same format as the carrier
+     * @return The writer, with the image header already written
+     * @throws IOException If there's an error writing the image
+     */
+    public CarrierWriter createWriter(String outputPath) throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("Carrier already has a writer");
+        }
+        if (bytesRead > 0) {
+            throw new IllegalStateException("Writer must be created before reading the carrier");
+        }
+        writer = new CarrierWriter(this, outputPath, pixelBytes, row.length);
+        return writer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    // Rows only need to be kept for writing back once there is a writer
+    boolean hasWriter() {
+        return writer != null;
+    }
+
+    /**
+     * Reads the next row of pixel bytes, in Blue, Green, Red order
+     * @return Number of bytes read into the row
+     */
+    abstract int readRow(byte[] row) throws IOException;
+
+    /**
+     * Writes everything that comes before the pixel data
+     */
+    abstract void writeHeader(OutputStream out) throws IOException;
+
+    /**
+     * Writes a row of pixel bytes previously returned by readRow, which may be modified in place
+     */
+    abstract void writeRow(OutputStream out, byte[] row, int length) throws IOException;
+
+    /**
+     * Writes everything that comes after the pixel data, once every row was read and written
+     */
+    abstract void writeTrailer(OutputStream out) throws IOException;
+
+    // Swaps the first and third byte of each pixel, turning RGB into BGR and back
+    static void swapRedAndBlue(byte[] row, int length) {
+        for (int i = 0; i + 2 < length; i += 3) {
+            byte tmp = row[i];
+            row[i] = row[i + 2];
+            row[i + 2] = tmp;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package carrier;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.security.SecureRandom;
+
+/**
+ * Writes a carrier back to disk one row at a time, with the pixel bytes given in the same order they were read.
+ * The image is written to a temporary file next to the output and only moved over it once complete,
+ * so the output can be the carrier itself and a failed embedding never leaves a half-written image.
+ */
+public final class CarrierWriter implements Closeable {
+
+    private static final int TEMP_FILE_ATTEMPTS = 100;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Carrier carrier;
+    private final Path outputPath;
+    private final Path tempPath;
+    private final OutputStream out;
+    private final long pixelBytes;
+    private final byte[] row;
+    private int rowPosition;
+    private long bytesWritten;
+
+    CarrierWriter(Carrier carrier, String outputPath, long pixelBytes, int rowLength) throws IOException {
+        this.carrier = carrier;
+        this.outputPath = Path.of(outputPath).toAbsolutePath();
+        this.tempPath = createTempSibling(this.outputPath);
+        this.pixelBytes = pixelBytes;
+        this.row = new byte[rowLength];
+
+        OutputStream stream = null;
+        try {
+            stream = new BufferedOutputStream(Files.newOutputStream(tempPath));
+            carrier.writeHeader(stream);
+        } catch (IOException | RuntimeException e) {
+            if (stream != null) {
+                stream.close();
+            }
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        this.out = stream;
+    }
+
+    /**
+     * Writes the next pixel bytes of the carrier
+     * @param buffer Buffer holding the bytes
+     * @param offset Start offset in the buffer
+     * @param length Number of bytes to write
+     * @throws IOException If there's an error writing the image
+     */
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        if (length > pixelBytes - bytesWritten) {
+            throw new IllegalStateException("Writing past the end of the pixel data");
+        }
+        int written = 0;
+        while (written < length) {
+            int count = Math.min(length - written, row.length - rowPosition);
+            System.arraycopy(buffer, offset + written, row, rowPosition, count);
+            rowPosition += count;
+            written += count;
+            bytesWritten += count;
+
+            if (rowPosition == row.length || bytesWritten == pixelBytes) {
+                carrier.writeRow(out, row, rowPosition);
+                rowPosition = 0;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        boolean moved = false;
+        try {
+            try (out) {
+                if (bytesWritten != pixelBytes) {
+                    throw new IllegalStateException("Carrier closed before all its pixel data was written");
+                }
+                carrier.writeTrailer(out);
+            }
+            if (Files.exists(outputPath)) {
+                copyPermissions(outputPath, tempPath);
+            }
+            try {
+                Files.move(tempPath, outputPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, outputPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(tempPath);
+            }
+        }
+    }
+
+    // Created like any other file rather than with Files.createTempFile, which makes it readable by its owner only
+    private static Path createTempSibling(Path outputPath) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            Path candidate = outputPath.resolveSibling(outputPath.getFileName() + "." + Long.toUnsignedString(RANDOM.nextLong(), 36) + ".tmp");
+            try {
+                Files.newOutputStream(candidate, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).close();
+                return candidate;
+            } catch (FileAlreadyExistsException e) {
+                if (attempt == TEMP_FILE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Replacing an existing image keeps its permissions
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+        if (view != null) {
+            Files.setPosixFilePermissions(to, view.readAttributes().permissions());
+        }
+    }
+}
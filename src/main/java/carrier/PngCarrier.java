@@ -0,0 +1,422 @@
+package carrier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Non-interlaced PNG with 8-bit RGB or RGBA pixels. IDAT chunks are inflated and unfiltered one scanline
+ * at a time, and written back the same way, so only a couple of scanlines are held in memory.
+ * Every other chunk is copied verbatim; the alpha channel is kept untouched.
+ */
+final class PngCarrier extends Carrier {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int IHDR = chunkType("IHDR");
+    private static final int IDAT = chunkType("IDAT");
+    private static final int COLOR_TYPE_RGB = 2;
+    private static final int COLOR_TYPE_RGBA = 6;
+    private static final int MAX_IDAT_SIZE = 32768;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final DataInputStream data;
+    private final byte[] headerChunks; // IHDR and every chunk before the first IDAT, as found in the file
+    private final int bytesPerPixel;
+    private final IdatInputStream idat;
+    private final Inflater inflater = new Inflater();
+    private final InputStream pixels;
+
+    // Scanlines keep the filter type in their first byte, like in the file
+    private byte[] scanline;
+    private byte[] previousScanline;
+    private final AlphaRows alphaRows;
+
+    // Output state, created along with the writer
+    private OutputStream deflated;
+    private IdatOutputStream idatOut;
+    private Deflater deflater;
+    private byte[] outScanline;
+    private byte[] previousOutScanline;
+    private byte[] bestFiltered;
+    private byte[] candidateFiltered;
+
+    PngCarrier(InputStream input) throws IOException {
+        this(input, new HeaderParser(new DataInputStream(input)));
+    }
+
+    private PngCarrier(InputStream input, HeaderParser parser) {
+        super(input, (long) parser.width * parser.height * 3, parser.width * 3);
+        this.data = parser.data;
+        this.headerChunks = parser.chunks.toByteArray();
+        this.bytesPerPixel = parser.colorType == COLOR_TYPE_RGBA ? 4 : 3;
+        this.idat = new IdatInputStream(data, parser.firstIdatLength);
+        this.pixels = new InflaterInputStream(idat, inflater, BUFFER_SIZE);
+        this.scanline = new byte[parser.width * bytesPerPixel + 1];
+        this.previousScanline = new byte[scanline.length];
+        this.alphaRows = new AlphaRows(parser.width);
+    }
+
+    @Override
+    int readRow(byte[] row) throws IOException {
+        byte[] tmp = previousScanline;
+        previousScanline = scanline;
+        scanline = tmp;
+
+        if (pixels.readNBytes(scanline, 0, scanline.length) < scanline.length) {
+            throw new EOFException("Truncated PNG image data");
+        }
+        unfilter(scanline, previousScanline, bytesPerPixel);
+
+        if (bytesPerPixel == 3) {
+            System.arraycopy(scanline, 1, row, 0, row.length);
+        } else {
+            byte[] alpha = alphaRows.next(hasWriter());
+            for (int pixel = 0, raw = 1, out = 0; pixel < alpha.length; pixel++, raw += 4, out += 3) {
+                row[out] = scanline[raw];
+                row[out + 1] = scanline[raw + 1];
+                row[out + 2] = scanline[raw + 2];
+                alpha[pixel] = scanline[raw + 3];
+            }
+        }
+        swapRedAndBlue(row, row.length);
+        return row.length;
+    }
+
+    @Override
+    void writeHeader(OutputStream out) throws IOException {
+        out.write(SIGNATURE);
+        out.write(headerChunks);
+
+        idatOut = new IdatOutputStream(out);
+        deflater = new Deflater();
+        deflated = new DeflaterOutputStream(idatOut, deflater, BUFFER_SIZE);
+        outScanline = new byte[scanline.length];
+        previousOutScanline = new byte[scanline.length];
+        bestFiltered = new byte[scanline.length];
+        candidateFiltered = new byte[scanline.length];
+    }
+
+    @Override
+    void writeRow(OutputStream out, byte[] row, int length) throws IOException {
+        swapRedAndBlue(row, length);
+        if (bytesPerPixel == 3) {
+            System.arraycopy(row, 0, outScanline, 1, length);
+        } else {
+            byte[] alpha = alphaRows.take();
+            for (int pixel = 0, in = 0, raw = 1; pixel < alpha.length; pixel++, in += 3, raw += 4) {
+                outScanline[raw] = row[in];
+                outScanline[raw + 1] = row[in + 1];
+                outScanline[raw + 2] = row[in + 2];
+                outScanline[raw + 3] = alpha[pixel];
+            }
+            alphaRows.release(alpha);
+        }
+
+        // Keep the filter that gives the smallest sum of absolute differences, as most encoders do
+        long bestSum = Long.MAX_VALUE;
+        for (int type = 0; type <= 4; type++) {
+            long sum = filter(type, outScanline, previousOutScanline, bytesPerPixel, candidateFiltered);
+            if (sum < bestSum) {
+                bestSum = sum;
+                byte[] tmp = bestFiltered;
+                bestFiltered = candidateFiltered;
+                candidateFiltered = tmp;
+            }
+        }
+        deflated.write(bestFiltered);
+
+        byte[] tmp = previousOutScanline;
+        previousOutScanline = outScanline;
+        outScanline = tmp;
+    }
+
+    @Override
+    void writeTrailer(OutputStream out) throws IOException {
+        try {
+            deflated.close(); // Finishes the stream and flushes the last IDAT chunk, without closing out
+        } finally {
+            deflater.end();
+        }
+
+        // Skip whatever is left of the input IDAT chunks and copy the remaining chunks, IEND included
+        idat.skipToEnd();
+        out.write(idat.nextChunkHeader);
+        data.transferTo(out);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            inflater.end();
+        } finally {
+            super.close();
+        }
+    }
+
+    private static void unfilter(byte[] scanline, byte[] previous, int bpp) {
+        switch (scanline[0]) {
+            case 0 -> {
+            }
+            case 1 -> {
+                for (int i = 1 + bpp; i < scanline.length; i++) {
+                    scanline[i] += scanline[i - bpp];
+                }
+            }
+            case 2 -> {
+                for (int i = 1; i < scanline.length; i++) {
+                    scanline[i] += previous[i];
+                }
+            }
+            case 3 -> {
+                for (int i = 1; i < scanline.length; i++) {
+                    int left = i > bpp ? scanline[i - bpp] & 0xFF : 0;
+                    scanline[i] = (byte) (scanline[i] + ((left + (previous[i] & 0xFF)) >>> 1));
+                }
+            }
+            case 4 -> {
+                for (int i = 1; i < scanline.length; i++) {
+                    int left = i > bpp ? scanline[i - bpp] & 0xFF : 0;
+                    int upperLeft = i > bpp ? previous[i - bpp] & 0xFF : 0;
+                    scanline[i] = (byte) (scanline[i] + paeth(left, previous[i] & 0xFF, upperLeft));
+                }
+            }
+            default -> throw new IllegalArgumentException("Invalid PNG filter type: " + scanline[0]);
+        }
+    }
+
+    // Filters the scanline into out and returns the sum of the filtered bytes taken as signed values
+    private static long filter(int type, byte[] scanline, byte[] previous, int bpp, byte[] out) {
+        out[0] = (byte) type;
+        long sum = 0;
+        for (int i = 1; i < scanline.length; i++) {
+            int current = scanline[i] & 0xFF;
+            int left = i > bpp ? scanline[i - bpp] & 0xFF : 0;
+            int up = previous[i] & 0xFF;
+            int upperLeft = i > bpp ? previous[i - bpp] & 0xFF : 0;
+            byte filtered = (byte) switch (type) {
+                case 0 -> current;
+                case 1 -> current - left;
+                case 2 -> current - up;
+                case 3 -> current - ((left + up) >>> 1);
+                default -> current - paeth(left, up, upperLeft);
+            };
+            out[i] = filtered;
+            sum += Math.abs(filtered);
+        }
+        return sum;
+    }
+
+    private static int paeth(int left, int up, int upperLeft) {
+        int p = left + up - upperLeft;
+        int pa = Math.abs(p - left);
+        int pb = Math.abs(p - up);
+        int pc = Math.abs(p - upperLeft);
+        if (pa <= pb && pa <= pc) {
+            return left;
+        }
+        return pb <= pc ? up : upperLeft;
+    }
+
+    private static int chunkType(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+        return ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+    }
+
+    // Reads the signature and every chunk up to the first IDAT, checking IHDR is supported
+    private static final class HeaderParser {
+        private final DataInputStream data;
+        private final ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+        private int width;
+        private int height;
+        private int colorType;
+        private int firstIdatLength;
+
+        private HeaderParser(DataInputStream data) throws IOException {
+            this.data = data;
+            byte[] signature = new byte[SIGNATURE.length];
+            data.readFully(signature);
+            if (!Arrays.equals(signature, SIGNATURE)) {
+                throw new IllegalArgumentException("Invalid PNG signature");
+            }
+
+            boolean headerFound = false;
+            while (true) {
+                int length = data.readInt();
+                int type = data.readInt();
+                if (type == IDAT) {
+                    if (!headerFound) {
+                        throw new IllegalArgumentException("PNG image data found before IHDR");
+                    }
+                    firstIdatLength = length;
+                    return;
+                }
+                if (length < 0) {
+                    throw new IllegalArgumentException("Invalid PNG chunk length");
+                }
+
+                byte[] body = new byte[length + 4]; // Chunk data and CRC
+                data.readFully(body);
+                if (type == IHDR) {
+                    readHeader(body);
+                    headerFound = true;
+                }
+                writeInt(chunks, length);
+                writeInt(chunks, type);
+                chunks.write(body);
+            }
+        }
+
+        private void readHeader(byte[] body) {
+            if (body.length != 13 + 4) {
+                throw new IllegalArgumentException("Invalid PNG header chunk");
+            }
+            width = ((body[0] & 0xFF) << 24) | ((body[1] & 0xFF) << 16) | ((body[2] & 0xFF) << 8) | (body[3] & 0xFF);
+            height = ((body[4] & 0xFF) << 24) | ((body[5] & 0xFF) << 16) | ((body[6] & 0xFF) << 8) | (body[7] & 0xFF);
+            int bitDepth = body[8] & 0xFF;
+            colorType = body[9] & 0xFF;
+            int interlace = body[12] & 0xFF;
+            if (width <= 0 || height <= 0 || (long) width * 4 + 1 > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid PNG size: " + width + "x" + height);
+            }
+            if (bitDepth != 8 || (colorType != COLOR_TYPE_RGB && colorType != COLOR_TYPE_RGBA)) {
+                throw new IllegalArgumentException("Only 8-bit RGB and RGBA PNG images are supported");
+            }
+            if (interlace != 0) {
+                throw new IllegalArgumentException("Interlaced PNG images are not supported");
+            }
+        }
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    // Concatenated data of consecutive IDAT chunks, ending at the first chunk of any other type
+    private static final class IdatInputStream extends InputStream {
+        private final DataInputStream data;
+        private byte[] nextChunkHeader; // Length and type of the chunk after the last IDAT
+        private int remaining;
+        private boolean ended;
+
+        private IdatInputStream(DataInputStream data, int firstLength) {
+            this.data = data;
+            this.remaining = checkLength(firstLength);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (remaining == 0) {
+                if (ended) {
+                    return -1;
+                }
+                data.readInt(); // CRC of the previous chunk
+                int length = data.readInt();
+                int type = data.readInt();
+                if (type != IDAT) {
+                    ended = true;
+                    nextChunkHeader = ByteBuffer.allocate(8).putInt(length).putInt(type).array();
+                    return -1;
+                }
+                remaining = checkLength(length);
+            }
+            int read = data.read(b, off, Math.min(len, remaining));
+            if (read == -1) {
+                throw new EOFException("Truncated PNG image data");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        private void skipToEnd() throws IOException {
+            while (!ended) {
+                data.skipNBytes(remaining);
+                remaining = 0;
+                read(new byte[1], 0, 1);
+            }
+        }
+
+        private static int checkLength(int length) {
+            if (length < 0) {
+                throw new IllegalArgumentException("Invalid PNG chunk length");
+            }
+            return length;
+        }
+    }
+
+    // Splits the compressed image data into IDAT chunks
+    private static final class IdatOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[MAX_IDAT_SIZE];
+        private final CRC32 crc = new CRC32();
+        private int count;
+
+        private IdatOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+                if (count == buffer.length) {
+                    writeChunk();
+                }
+            }
+        }
+
+        // Writes the last chunk, leaving the underlying stream open
+        @Override
+        public void close() throws IOException {
+            if (count > 0) {
+                writeChunk();
+            }
+        }
+
+        private void writeChunk() throws IOException {
+            crc.reset();
+            crc.update(IDAT >>> 24);
+            crc.update(IDAT >>> 16);
+            crc.update(IDAT >>> 8);
+            crc.update(IDAT);
+            crc.update(buffer, 0, count);
+
+            writeInt(out, count);
+            writeInt(out, IDAT);
+            out.write(buffer, 0, count);
+            writeInt(out, (int) crc.getValue());
+            count = 0;
+        }
+    }
+}
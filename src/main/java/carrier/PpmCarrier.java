@@ -0,0 +1,111 @@
+package carrier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Binary PPM (P6) with a maxval of 255. The header is copied verbatim, comments included.
+ */
+final class PpmCarrier extends Carrier {
+
+    private final byte[] header;
+
+    PpmCarrier(InputStream input) throws IOException {
+        this(input, new HeaderParser(input));
+    }
+
+    private PpmCarrier(InputStream input, HeaderParser parser) {
+        super(input, (long) parser.width * parser.height * 3, parser.width * 3);
+        this.header = parser.header.toByteArray();
+    }
+
+    @Override
+    int readRow(byte[] row) throws IOException {
+        if (input.readNBytes(row, 0, row.length) < row.length) {
+            throw new EOFException("Truncated PPM pixel data");
+        }
+        swapRedAndBlue(row, row.length);
+        return row.length;
+    }
+
+    @Override
+    void writeHeader(OutputStream out) throws IOException {
+        out.write(header);
+    }
+
+    @Override
+    void writeRow(OutputStream out, byte[] row, int length) throws IOException {
+        swapRedAndBlue(row, length);
+        out.write(row, 0, length);
+    }
+
+    @Override
+    void writeTrailer(OutputStream out) throws IOException {
+        input.transferTo(out);
+    }
+
+    // Reads "P6 <width> <height> <maxval>" followed by a single whitespace, keeping every byte read
+    private static final class HeaderParser {
+        private final InputStream input;
+        private final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        private final int width;
+        private final int height;
+
+        private HeaderParser(InputStream input) throws IOException {
+            this.input = input;
+            if (next() != 'P' || next() != '6') {
+                throw new IllegalArgumentException("Only binary PPM (P6) images are supported");
+            }
+            width = readNumber();
+            height = readNumber();
+            int maxValue = readNumber();
+            if (width <= 0 || height <= 0 || (long) width * 3 > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid PPM size: " + width + "x" + height);
+            }
+            // Hidden bits can set any value up to 255, which would be out of range with a smaller maxval
+            if (maxValue != 255) {
+                throw new IllegalArgumentException("Only PPM images with a maxval of 255 are supported");
+            }
+        }
+
+        private int next() throws IOException {
+            int b = input.read();
+            if (b == -1) {
+                throw new EOFException("Truncated PPM header");
+            }
+            header.write(b);
+            return b;
+        }
+
+        private int readNumber() throws IOException {
+            int b = next();
+            while (Character.isWhitespace(b) || b == '#') {
+                if (b == '#') {
+                    while (b != '\n' && b != '\r') {
+                        b = next();
+                    }
+                }
+                b = next();
+            }
+            if (b < '0' || b > '9') {
+                throw new IllegalArgumentException("Invalid PPM header");
+            }
+            int value = 0;
+            while (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                if (value > 0xFFFFFF) {
+                    throw new IllegalArgumentException("Invalid PPM header");
+                }
+                b = next();
+            }
+            // The single whitespace after the number is kept as part of the header
+            if (!Character.isWhitespace(b)) {
+                throw new IllegalArgumentException("Invalid PPM header");
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package carrier;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Uncompressed true-colour TGA (image type 2) with 24 or 32 bits per pixel.
+ * Pixels are already stored as Blue, Green, Red; the alpha channel of 32-bit images is kept untouched.
+ */
+final class TgaCarrier extends Carrier {
+
+    private static final int HEADER_SIZE = 18;
+    private static final int UNCOMPRESSED_TRUE_COLOR = 2;
+
+    private final byte[] header;
+    private final int bytesPerPixel;
+    private final byte[] rawRow;
+    private final byte[] rawOutRow;
+    private final AlphaRows alphaRows;
+
+    TgaCarrier(InputStream input) throws IOException {
+        this(input, readHeader(input));
+    }
+
+    private TgaCarrier(InputStream input, byte[] header) {
+        super(input, (long) width(header) * height(header) * 3, width(header) * 3);
+        this.header = header;
+        this.bytesPerPixel = (header[16] & 0xFF) / 8;
+        this.rawRow = new byte[width(header) * bytesPerPixel];
+        this.rawOutRow = new byte[rawRow.length];
+        this.alphaRows = new AlphaRows(width(header));
+    }
+
+    private static byte[] readHeader(InputStream input) throws IOException {
+        byte[] fixedHeader = readFully(input, HEADER_SIZE);
+        int idLength = fixedHeader[0] & 0xFF;
+        int imageType = fixedHeader[2] & 0xFF;
+        int pixelDepth = fixedHeader[16] & 0xFF;
+        if (imageType != UNCOMPRESSED_TRUE_COLOR) {
+            throw new IllegalArgumentException("Only uncompressed true-colour TGA images are supported");
+        }
+        if (pixelDepth != 24 && pixelDepth != 32) {
+            throw new IllegalArgumentException("Unsupported TGA pixel depth: " + pixelDepth);
+        }
+        if (width(fixedHeader) == 0 || height(fixedHeader) == 0) {
+            throw new IllegalArgumentException("Invalid TGA size");
+        }
+
+        // The image ID and the (unused) colour map are kept as part of the header
+        int colorMapLength = fixedHeader[1] == 0 ? 0 : ((fixedHeader[5] & 0xFF) | ((fixedHeader[6] & 0xFF) << 8)) * (((fixedHeader[7] & 0xFF) + 7) / 8);
+        byte[] extra = readFully(input, idLength + colorMapLength);
+
+        byte[] header = new byte[HEADER_SIZE + extra.length];
+        System.arraycopy(fixedHeader, 0, header, 0, HEADER_SIZE);
+        System.arraycopy(extra, 0, header, HEADER_SIZE, extra.length);
+        return header;
+    }
+
+    private static byte[] readFully(InputStream input, int length) throws IOException {
+        byte[] bytes = input.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException("Truncated TGA header");
+        }
+        return bytes;
+    }
+
+    private static int width(byte[] header) {
+        return (header[12] & 0xFF) | ((header[13] & 0xFF) << 8);
+    }
+
+    private static int height(byte[] header) {
+        return (header[14] & 0xFF) | ((header[15] & 0xFF) << 8);
+    }
+
+    @Override
+    int readRow(byte[] row) throws IOException {
+        if (bytesPerPixel == 3) {
+            if (input.readNBytes(row, 0, row.length) < row.length) {
+                throw new EOFException("Truncated TGA pixel data");
+            }
+            return row.length;
+        }
+
+        if (input.readNBytes(rawRow, 0, rawRow.length) < rawRow.length) {
+            throw new EOFException("Truncated TGA pixel data");
+        }
+        byte[] alpha = alphaRows.next(hasWriter());
+        for (int pixel = 0, raw = 0, out = 0; pixel < alpha.length; pixel++, raw += 4, out += 3) {
+            row[out] = rawRow[raw];
+            row[out + 1] = rawRow[raw + 1];
+            row[out + 2] = rawRow[raw + 2];
+            alpha[pixel] = rawRow[raw + 3];
+        }
+        return row.length;
+    }
+
+    @Override
+    void writeHeader(OutputStream out) throws IOException {
+        out.write(header);
+    }
+
+    @Override
+    void writeRow(OutputStream out, byte[] row, int length) throws IOException {
+        if (bytesPerPixel == 3) {
+            out.write(row, 0, length);
+            return;
+        }
+
+        byte[] alpha = alphaRows.take();
+        for (int pixel = 0, in = 0, raw = 0; pixel < alpha.length; pixel++, in += 3, raw += 4) {
+            rawOutRow[raw] = row[in];
+            rawOutRow[raw + 1] = row[in + 1];
+            rawOutRow[raw + 2] = row[in + 2];
+            rawOutRow[raw + 3] = alpha[pixel];
+        }
+        alphaRows.release(alpha);
+        out.write(rawOutRow);
+    }
+
+    @Override
+    void writeTrailer(OutputStream out) throws IOException {
+        // Developer area, extension area and footer are copied verbatim
+        input.transferTo(out);
+    }
+}
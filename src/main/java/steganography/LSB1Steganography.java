@@ -1,85 +1,75 @@
 package steganography;
 
-import java.io.ByteArrayOutputStream;
-import java.io.File;
+import carrier.Carrier;
+import carrier.CarrierWriter;
+
 import java.io.IOException;
-import java.nio.file.Files;
 
 public final class LSB1Steganography implements SteganographyInterface {
 
-    private static final int INT_SIZE = 32; // Number of bits in an integer
     private static final int BITS_IN_BYTE = 8;
+    private static final int BLOCK_SIZE = 8192 * BITS_IN_BYTE; // Carrier bytes processed at a time, 8 per hidden byte
 
     @Override
     public void encode(String coverImagePath, byte[] data, String outputPath) throws IOException {
-        // Read the BMP image as a byte array
-        byte[] imageBytes = Files.readAllBytes(new File(coverImagePath).toPath());
-
-        // Get the pixel data starting offset from the BMP header (bytes 10 to 13)
-        int pixelDataOffset = ((imageBytes[10] & 0xFF)) |
-                ((imageBytes[11] & 0xFF) << 8) |
-                ((imageBytes[12] & 0xFF) << 16) |
-                ((imageBytes[13] & 0xFF) << 24);
-
-        // Calculate the number of bits available for embedding data
-        int availableBits = (imageBytes.length - pixelDataOffset) * 8;
-
-        // Calculate the total number of bits required for embedding
-        int totalDataBits = data.length * 8;
-        // Check if the cover image has enough space
-        if (totalDataBits > availableBits) {
-            throw new IllegalArgumentException("Data too large for cover image");
-        }
-
-        int imageByteOffset = pixelDataOffset;
+        try (Carrier cover = Carrier.open(coverImagePath)) {
+            // Check if the cover image has enough space, one bit per pixel byte
+            if (data.length > capacity(cover)) {
+                throw new IllegalArgumentException("Data too large for cover image");
+            }
 
-        //Embed the actual data
-        for (byte b : data) {
-            for (int i = 7; i >= 0; i--) {
-                int bit = (b >> i) & 1; // Big-endian order
-                imageBytes[imageByteOffset] = (byte)((imageBytes[imageByteOffset] & 0xFE) | bit);
-                imageByteOffset++;
+            try (CarrierWriter writer = cover.createWriter(outputPath)) {
+                byte[] block = new byte[BLOCK_SIZE];
+                int dataIndex = 0;
+                int read;
+
+                // Embed the actual data, then copy the rest of the pixels unchanged
+                while ((read = cover.read(block, 0, block.length)) > 0) {
+                    for (int offset = 0; dataIndex < data.length && offset < read; dataIndex++) {
+                        byte b = data[dataIndex];
+                        for (int i = 7; i >= 0; i--) {
+                            int bit = (b >> i) & 1; // Big-endian order
+                            block[offset] = (byte) ((block[offset] & 0xFE) | bit);
+                            offset++;
+                        }
+                    }
+                    writer.write(block, 0, read);
+                }
             }
         }
-
-        // Write the modified image bytes to the output file
-        Files.write(new File(outputPath).toPath(), imageBytes);
     }
 
     @Override
     public byte[] decode(String stegoImagePath) throws IOException {
-        // Read the stego image as a byte array
-        byte[] imageBytes = Files.readAllBytes(new File(stegoImagePath).toPath());
-
-        // Get the pixel data starting offset
-        int pixelDataOffset = ((imageBytes[10] & 0xFF)) |
-                ((imageBytes[11] & 0xFF) << 8) |
-                ((imageBytes[12] & 0xFF) << 16) |
-                ((imageBytes[13] & 0xFF) << 24);
-
-        int imageByteOffset = pixelDataOffset;
-
-        // Extract the embedded data
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        int bitCount = 0;
-        int currentByte = 0;
-
-        while (imageByteOffset < imageBytes.length) {
-            int bit = imageBytes[imageByteOffset] & 1;
-            currentByte = (currentByte << 1) | bit;
-            bitCount++;
-
-            if (bitCount == 8) {
-                baos.write(currentByte);
-                bitCount = 0;
-                currentByte = 0;
+        try (Carrier stego = Carrier.open(stegoImagePath)) {
+            // Extract the embedded data, only whole bytes are kept
+            byte[] extractedData = new byte[capacity(stego)];
+            byte[] block = new byte[BLOCK_SIZE];
+            int dataIndex = 0;
+
+            while (dataIndex < extractedData.length) {
+                int read = stego.read(block, 0, block.length);
+                for (int offset = 0; offset + BITS_IN_BYTE <= read; offset += BITS_IN_BYTE) {
+                    int currentByte = 0;
+                    for (int i = 0; i < BITS_IN_BYTE; i++) {
+                        currentByte = (currentByte << 1) | (block[offset + i] & 1);
+                    }
+                    extractedData[dataIndex++] = (byte) currentByte;
+                }
             }
 
-            imageByteOffset++;
+            return extractedData;
         }
+    }
 
-        byte[] extractedData = baos.toByteArray();
+    @Override
+    public int capacity(String coverImagePath) throws IOException {
+        try (Carrier cover = Carrier.open(coverImagePath)) {
+            return capacity(cover);
+        }
+    }
 
-        return extractedData;
+    private static int capacity(Carrier cover) {
+        return (int) Math.min(Integer.MAX_VALUE, cover.pixelBytes() / BITS_IN_BYTE);
     }
 }
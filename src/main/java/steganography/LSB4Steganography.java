@@ -1,90 +1,73 @@
 package steganography;
 
-import java.io.ByteArrayOutputStream;
-import java.io.File;
+import carrier.Carrier;
+import carrier.CarrierWriter;
+
 import java.io.IOException;
-import java.nio.file.Files;
 
 public final class LSB4Steganography implements SteganographyInterface {
 
     private static final int BITS_IN_BYTE = 8;
     private static final int BITS_TO_EMBED = 4; // Number of bits to embed per byte
+    private static final int BYTES_PER_HIDDEN_BYTE = BITS_IN_BYTE / BITS_TO_EMBED;
+    private static final int BLOCK_SIZE = 32768 * BYTES_PER_HIDDEN_BYTE; // Carrier bytes processed at a time
 
     @Override
     public void encode(String coverImagePath, byte[] data, String outputPath) throws IOException {
-        // Read the BMP image as a byte array
-        byte[] imageBytes = Files.readAllBytes(new File(coverImagePath).toPath());
-
-        // Get the pixel data starting offset from the BMP header (bytes 10 to 13)
-        int pixelDataOffset = ((imageBytes[10] & 0xFF)) |
-                ((imageBytes[11] & 0xFF) << 8) |
-                ((imageBytes[12] & 0xFF) << 16) |
-                ((imageBytes[13] & 0xFF) << 24);
-
-        // Calculate the number of bits available for embedding data
-        int availableBits = (imageBytes.length - pixelDataOffset) * BITS_TO_EMBED;
-
-        // Calculate the total number of bits required for embedding
-        int totalDataBits = data.length * BITS_IN_BYTE;
-
-        // Check if the cover image has enough space
-        if (totalDataBits > availableBits) {
-            throw new IllegalArgumentException("Data too large for cover image");
-        }
-
-        int imageByteOffset = pixelDataOffset;
-
+        try (Carrier cover = Carrier.open(coverImagePath)) {
+            // Check if the cover image has enough space, 4 bits per pixel byte
+            if (data.length > capacity(cover)) {
+                throw new IllegalArgumentException("Data too large for cover image");
+            }
 
-        // Embed the data
-        for (byte b : data) {
-            for (int i = 0; i < BITS_IN_BYTE; i += BITS_TO_EMBED) {
-                int bits = (b >> (BITS_IN_BYTE - BITS_TO_EMBED - i)) & 0x0F;
-                imageBytes[imageByteOffset] = (byte) ((imageBytes[imageByteOffset] & 0xF0) | bits);
-                imageByteOffset++;
+            try (CarrierWriter writer = cover.createWriter(outputPath)) {
+                byte[] block = new byte[BLOCK_SIZE];
+                int dataIndex = 0;
+                int read;
+
+                // Embed the data, then copy the rest of the pixels unchanged
+                while ((read = cover.read(block, 0, block.length)) > 0) {
+                    for (int offset = 0; dataIndex < data.length && offset < read; dataIndex++) {
+                        byte b = data[dataIndex];
+                        for (int i = 0; i < BITS_IN_BYTE; i += BITS_TO_EMBED) {
+                            int bits = (b >> (BITS_IN_BYTE - BITS_TO_EMBED - i)) & 0x0F;
+                            block[offset] = (byte) ((block[offset] & 0xF0) | bits);
+                            offset++;
+                        }
+                    }
+                    writer.write(block, 0, read);
+                }
             }
         }
-
-        Files.write(new File(outputPath).toPath(), imageBytes);
     }
 
     @Override
     public byte[] decode(String stegoImagePath) throws IOException {
-        // Read the stego image as a byte array
-        byte[] imageBytes = Files.readAllBytes(new File(stegoImagePath).toPath());
-
-        // Get the pixel data starting offset
-        int pixelDataOffset = ((imageBytes[10] & 0xFF)) |
-                ((imageBytes[11] & 0xFF) << 8) |
-                ((imageBytes[12] & 0xFF) << 16) |
-                ((imageBytes[13] & 0xFF) << 24);
-
-        int imageByteOffset = pixelDataOffset;
-
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        int bitCount = 0;
-        int currentByte = 0;
-
-        while (imageByteOffset < imageBytes.length) {
-            // Extract the 4 LSBs from the current image byte
-            int bits = imageBytes[imageByteOffset] & 0x0F;
-            currentByte = (currentByte << BITS_TO_EMBED) | bits;
-            bitCount += BITS_TO_EMBED;
-
-            while (bitCount >= 8) {
-                // Extract the top 8 bits from currentByte
-                int byteToWrite = (currentByte >> (bitCount - BITS_IN_BYTE)) & 0xFF;
-                baos.write(byteToWrite);
-                bitCount -= 8;
-                // Keep the remaining bits in currentByte
-                currentByte = currentByte & ((1 << bitCount) - 1);
+        try (Carrier stego = Carrier.open(stegoImagePath)) {
+            // Each byte is rebuilt from the 4 LSBs of two pixel bytes, high nibble first
+            byte[] extractedData = new byte[capacity(stego)];
+            byte[] block = new byte[BLOCK_SIZE];
+            int dataIndex = 0;
+
+            while (dataIndex < extractedData.length) {
+                int read = stego.read(block, 0, block.length);
+                for (int offset = 0; offset + BYTES_PER_HIDDEN_BYTE <= read; offset += BYTES_PER_HIDDEN_BYTE) {
+                    extractedData[dataIndex++] = (byte) (((block[offset] & 0x0F) << BITS_TO_EMBED) | (block[offset + 1] & 0x0F));
+                }
             }
 
-            imageByteOffset++;
+            return extractedData;
         }
+    }
 
-        // The  data
-        byte[] extractedData = baos.toByteArray();
+    @Override
+    public int capacity(String coverImagePath) throws IOException {
+        try (Carrier cover = Carrier.open(coverImagePath)) {
+            return capacity(cover);
+        }
+    }
 
-        return extractedData;
+    private static int capacity(Carrier cover) {
+        return (int) Math.min(Integer.MAX_VALUE, cover.pixelBytes() / BYTES_PER_HIDDEN_BYTE);
     }
 }
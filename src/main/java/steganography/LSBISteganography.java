@@ -1,174 +1,155 @@
 package steganography;
 
-import java.io.ByteArrayOutputStream;
-import java.io.File;
+import carrier.Carrier;
+import carrier.CarrierWriter;
+
 import java.io.IOException;
-import java.nio.file.Files;
-import java.util.Arrays;
 
 public final class LSBISteganography implements SteganographyInterface {
 
+    private static final int PATTERN_COUNT = 4; // Patterns made of bits 2-3 (counting from behind)
+    private static final int BITS_IN_BYTE = 8;
+    // Every 3 carrier bytes hold 2 bits (the middle byte is skipped), so 12 carrier bytes hold one secret byte
+    private static final int CARRIER_BYTES_PER_SECRET_BYTE = 12;
+    private static final int BLOCK_SIZE = 4096 * CARRIER_BYTES_PER_SECRET_BYTE; // Carrier bytes processed at a time
 
     @Override
     public void encode(String coverImagePath, byte[] secretData, String outputPath) throws IOException {
-        // Read the cover image
-        byte[] imageBytes = Files.readAllBytes(new File(coverImagePath).toPath());
-
-        // Get the pixel data offset from BMP header
-        int pixelDataOffset = ((imageBytes[10] & 0xFF)) |
-                ((imageBytes[11] & 0xFF) << 8) |
-                ((imageBytes[12] & 0xFF) << 16) |
-                ((imageBytes[13] & 0xFF) << 24);
-
-        // Create a copy of the image to modify
-        byte[] stegoImage = Arrays.copyOf(imageBytes, imageBytes.length);
-
-        // 4 bits for pattern inversion flags
-        int availableCapacity = (imageBytes.length - pixelDataOffset - 4) * 2 / 3; // Only Blue and Green channels
-        if (secretData.length > availableCapacity) {
-            throw new IllegalArgumentException("Secret data is too large for this cover image");
-        }
+        // First pass: count, per pattern, how many LSBs would change. Indexed by (pattern << 1) | changed,
+        // which is just the low 3 bits of (carrier ^ secretBit)
+        int[] patternStats = new int[PATTERN_COUNT * 2];
 
-        // First, embed the secret data without pattern analysis
-        int startOffset = pixelDataOffset + 4; // Leave 4 bytes for pattern information
-        int pixelCounter = 0;
-        int secretBitIndex = 0;
-
-        // Arrays to count pattern statistics
-        int[][] patternStats = new int[4][2]; // [pattern][changed/unchanged]
-
-        // First pass
-        while (secretBitIndex < secretData.length * 8 && startOffset < stegoImage.length) {
-            // Skip red channel
-            if (pixelCounter % 3 == 1) {
-                startOffset++;
-                pixelCounter++;
-                continue;
+        try (Carrier cover = Carrier.open(coverImagePath)) {
+            if (secretData.length > capacity(cover)) {
+                throw new IllegalArgumentException("Secret data is too large for this cover image");
             }
 
-            // Get the current bit from secret data
-            int byteIndex = secretBitIndex / 8;
-            int bitOffset = 7 - (secretBitIndex % 8);
-            int secretBit = (secretData[byteIndex] >> bitOffset) & 1;
-
-            // Get the pattern from bits 2-3 (counting from behind)
-            int pattern = (stegoImage[startOffset] >> 1) & 0b11;
-
-            // Get original LSB
-            int originalLSB = stegoImage[startOffset] & 1;
-
-            // Set the LSB
-            stegoImage[startOffset] = (byte) ((stegoImage[startOffset] & 0xFE) | secretBit);
-
-            // Update statistics
-            if (originalLSB != secretBit) {
-                patternStats[pattern][0]++; // changed
-            } else {
-                patternStats[pattern][1]++; // unchanged
+            cover.read(new byte[PATTERN_COUNT], 0, PATTERN_COUNT); // Leave 4 bytes for pattern information
+
+            byte[] block = new byte[BLOCK_SIZE];
+            int dataIndex = 0;
+            while (dataIndex < secretData.length) {
+                int read = cover.read(block, 0, block.length);
+                for (int offset = 0; dataIndex < secretData.length && offset < read; offset += CARRIER_BYTES_PER_SECRET_BYTE) {
+                    int b = secretData[dataIndex++];
+                    patternStats[(block[offset] ^ ((b >> 7) & 1)) & 0b111]++;
+                    patternStats[(block[offset + 2] ^ ((b >> 6) & 1)) & 0b111]++;
+                    patternStats[(block[offset + 3] ^ ((b >> 5) & 1)) & 0b111]++;
+                    patternStats[(block[offset + 5] ^ ((b >> 4) & 1)) & 0b111]++;
+                    patternStats[(block[offset + 6] ^ ((b >> 3) & 1)) & 0b111]++;
+                    patternStats[(block[offset + 8] ^ ((b >> 2) & 1)) & 0b111]++;
+                    patternStats[(block[offset + 9] ^ ((b >> 1) & 1)) & 0b111]++;
+                    patternStats[(block[offset + 11] ^ (b & 1)) & 0b111]++;
+                }
             }
-
-            secretBitIndex++;
-            pixelCounter++;
-            startOffset++;
         }
 
         // Determine which patterns need inversion
-        boolean[] patternInversion = new boolean[4];
-        for (int i = 0; i < 4; i++) {
-            patternInversion[i] = patternStats[i][0] > patternStats[i][1];
-        }
-
-        // Second pass: apply pattern inversions
-        startOffset = pixelDataOffset + 4;
-        pixelCounter = 0;
-        secretBitIndex = 0;
-
-        while (secretBitIndex < secretData.length * 8 && startOffset < stegoImage.length) {
-            // Skip red channel
-            if (pixelCounter % 3 == 1) {
-                startOffset++;
-                pixelCounter++;
-                continue;
+        int inversionFlags = 0;
+        for (int i = 0; i < PATTERN_COUNT; i++) {
+            if (patternStats[(i << 1) | 1] > patternStats[i << 1]) {
+                inversionFlags |= 1 << i;
             }
+        }
 
-            // Get the pattern
-            int pattern = (stegoImage[startOffset] >> 1) & 0b11;
+        // Second pass: set every LSB to the secret bit, already inverted according to its pattern
+        byte[] encodeTable = buildEncodeTable(inversionFlags);
 
-            // If this pattern should be inverted, flip the LSB
-            if (patternInversion[pattern]) {
-                stegoImage[startOffset] ^= 1;
+        try (Carrier cover = Carrier.open(coverImagePath);
+             CarrierWriter writer = cover.createWriter(outputPath)) {
+            // Store pattern inversion flags in the first 4 bytes of pixel data
+            byte[] flags = new byte[PATTERN_COUNT];
+            int flagBytes = cover.read(flags, 0, PATTERN_COUNT);
+            for (int i = 0; i < flagBytes; i++) {
+                flags[i] = (byte) ((flags[i] & 0xFE) | ((inversionFlags >> i) & 1));
+            }
+            writer.write(flags, 0, flagBytes);
+
+            byte[] block = new byte[BLOCK_SIZE];
+            int dataIndex = 0;
+            int read;
+            while ((read = cover.read(block, 0, block.length)) > 0) {
+                for (int offset = 0; dataIndex < secretData.length && offset < read; offset += CARRIER_BYTES_PER_SECRET_BYTE) {
+                    int b = secretData[dataIndex++];
+                    block[offset] = (byte) (encodeTable[block[offset] & 0xFF] ^ ((b >> 7) & 1));
+                    block[offset + 2] = (byte) (encodeTable[block[offset + 2] & 0xFF] ^ ((b >> 6) & 1));
+                    block[offset + 3] = (byte) (encodeTable[block[offset + 3] & 0xFF] ^ ((b >> 5) & 1));
+                    block[offset + 5] = (byte) (encodeTable[block[offset + 5] & 0xFF] ^ ((b >> 4) & 1));
+                    block[offset + 6] = (byte) (encodeTable[block[offset + 6] & 0xFF] ^ ((b >> 3) & 1));
+                    block[offset + 8] = (byte) (encodeTable[block[offset + 8] & 0xFF] ^ ((b >> 2) & 1));
+                    block[offset + 9] = (byte) (encodeTable[block[offset + 9] & 0xFF] ^ ((b >> 1) & 1));
+                    block[offset + 11] = (byte) (encodeTable[block[offset + 11] & 0xFF] ^ (b & 1));
+                }
+                writer.write(block, 0, read);
             }
-
-            secretBitIndex++;
-            pixelCounter++;
-            startOffset++;
-        }
-
-        // Store pattern inversion flags in the first 4 bytes of pixel data
-        for (int i = 0; i < 4; i++) {
-            stegoImage[pixelDataOffset + i] = (byte) ((stegoImage[pixelDataOffset + i] & 0xFE) | (patternInversion[i] ? 1 : 0));
         }
-
-        Files.write(new File(outputPath).toPath(), stegoImage);
     }
 
     @Override
     public byte[] decode(String stegoImagePath) throws IOException {
-        // Read the stego image
-        byte[] imageBytes = Files.readAllBytes(new File(stegoImagePath).toPath());
-
-        // Get the pixel data offset from BMP header
-        int pixelDataOffset = ((imageBytes[10] & 0xFF)) |
-                ((imageBytes[11] & 0xFF) << 8) |
-                ((imageBytes[12] & 0xFF) << 16) |
-                ((imageBytes[13] & 0xFF) << 24);
-
-        // Read pattern inversion information from the first 4 bytes of pixel data
-        boolean[] patternInversion = new boolean[4];
-        for (int i = 0; i < 4; i++) {
-            patternInversion[i] = (imageBytes[pixelDataOffset + i] & 1) == 1;
-        }
-
-        // Skip the 4 bytes used for pattern information
-        int startOffset = pixelDataOffset + 4;
-
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        int bitCount = 0;
-        int currentByte = 0;
-        int pixelCounter = 0;
-
-        while (startOffset < imageBytes.length) {
-
-            // If we've read 1 bit from the pixel, skip the second (red channel because I am reading the first 3 bytes' LSBs)
-            if (pixelCounter % 3 == 1) {
-                startOffset++;
-                pixelCounter++;
-                continue;
+        try (Carrier stego = Carrier.open(stegoImagePath)) {
+            // Read pattern inversion information from the first 4 bytes of pixel data
+            byte[] flags = new byte[PATTERN_COUNT];
+            int flagBytes = stego.read(flags, 0, PATTERN_COUNT);
+            int inversionFlags = 0;
+            for (int i = 0; i < flagBytes; i++) {
+                inversionFlags |= (flags[i] & 1) << i;
             }
-
-            int bit = imageBytes[startOffset] & 1;
-
-            int bitPattern = (imageBytes[startOffset] >> 1) & 0b11;
-
-            if (patternInversion[bitPattern]) {
-                bit ^= 1; // Invert if pattern is marked for inversion
+            byte[] decodeTable = buildDecodeTable(inversionFlags);
+
+            // Only whole bytes are returned, each one read from 12 carrier bytes (4 pixels, skipping the middle byte)
+            byte[] extractedData = new byte[capacity(stego)];
+            byte[] block = new byte[BLOCK_SIZE];
+            int dataIndex = 0;
+
+            while (dataIndex < extractedData.length) {
+                int read = stego.read(block, 0, block.length);
+                for (int offset = 0; dataIndex < extractedData.length && offset < read; offset += CARRIER_BYTES_PER_SECRET_BYTE) {
+                    extractedData[dataIndex++] = (byte) ((decodeTable[block[offset] & 0xFF] << 7) |
+                            (decodeTable[block[offset + 2] & 0xFF] << 6) |
+                            (decodeTable[block[offset + 3] & 0xFF] << 5) |
+                            (decodeTable[block[offset + 5] & 0xFF] << 4) |
+                            (decodeTable[block[offset + 6] & 0xFF] << 3) |
+                            (decodeTable[block[offset + 8] & 0xFF] << 2) |
+                            (decodeTable[block[offset + 9] & 0xFF] << 1) |
+                            decodeTable[block[offset + 11] & 0xFF]);
+                }
             }
 
-            currentByte = (currentByte << 1) | bit;
-            bitCount++;
-
-            if (bitCount == 8) {
-                baos.write(currentByte);
-                bitCount = 0;
-                currentByte = 0;
-            }
+            return extractedData;
+        }
+    }
 
-            pixelCounter++;
-            startOffset++;
+    @Override
+    public int capacity(String coverImagePath) throws IOException {
+        try (Carrier cover = Carrier.open(coverImagePath)) {
+            return capacity(cover);
         }
+    }
+
+    // Every group of 3 pixel bytes after the pattern flags holds 2 bits, a trailing partial group holds 1
+    private static int capacity(Carrier cover) {
+        long carrierBytes = Math.max(0, cover.pixelBytes() - PATTERN_COUNT);
+        long carrierBits = (carrierBytes / 3) * 2 + (carrierBytes % 3 == 0 ? 0 : 1);
+        return (int) Math.min(Integer.MAX_VALUE, carrierBits / BITS_IN_BYTE);
+    }
 
-        byte[] extractedData = baos.toByteArray();
+    // Maps a carrier byte to the byte to write: LSB replaced by the inversion flag of its pattern,
+    // so XOR-ing the secret bit gives the final (possibly inverted) value
+    private static byte[] buildEncodeTable(int inversionFlags) {
+        byte[] table = new byte[256];
+        for (int b = 0; b < 256; b++) {
+            table[b] = (byte) ((b & 0xFE) | ((inversionFlags >> ((b >> 1) & 0b11)) & 1));
+        }
+        return table;
+    }
 
-        return extractedData;
+    // Maps a carrier byte to the hidden bit it holds, undoing the inversion of its pattern
+    private static byte[] buildDecodeTable(int inversionFlags) {
+        byte[] table = new byte[256];
+        for (int b = 0; b < 256; b++) {
+            table[b] = (byte) ((b & 1) ^ ((inversionFlags >> ((b >> 1) & 0b11)) & 1));
+        }
+        return table;
     }
 }
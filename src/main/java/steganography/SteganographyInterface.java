@@ -22,4 +22,12 @@ public sealed interface SteganographyInterface permits LSB1Steganography, LSB4St
      */
     byte[] decode(String stegoImagePath) throws IOException;
 
+    /**
+     * Computes how many bytes can be hidden in an image
+     * @param coverImagePath Path to the input image
+     * @return Maximum length of the byte array encode accepts for this image
+     * @throws IOException If there's an error handling the image
+     */
+    int capacity(String coverImagePath) throws IOException;
+
 }
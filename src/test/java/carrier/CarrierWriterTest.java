@@ -0,0 +1,88 @@
+package carrier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import steganography.LSB1Steganography;
+import steganography.LSB4Steganography;
+import steganography.LSBISteganography;
+import steganography.SteganographyInterface;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks how stego images land on disk: the output may be the carrier itself, and its permissions
+ * are the ones any new file gets, or the ones of the image it replaces.
+ */
+class CarrierWriterTest {
+
+    private static final Path RESOURCES = Path.of("src", "main", "resources");
+    private static final byte[] DATA = "hidden in place".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path workDir;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"lado.bmp", "blockbuster.png"})
+    void outputCanBeTheCarrier(String image) throws IOException {
+        for (SteganographyInterface steg : new SteganographyInterface[]{new LSB1Steganography(), new LSB4Steganography(), new LSBISteganography()}) {
+            Path carrier = workDir.resolve(image);
+            Files.copy(RESOURCES.resolve(image), carrier, StandardCopyOption.REPLACE_EXISTING);
+
+            steg.encode(carrier.toString(), DATA, carrier.toString());
+
+            assertArrayEquals(DATA, Arrays.copyOf(steg.decode(carrier.toString()), DATA.length), steg.getClass().getSimpleName());
+            assertEquals(Set.of(carrier), files(), "temporary files left behind");
+        }
+    }
+
+    @Test
+    void newOutputGetsDefaultPermissions() throws IOException {
+        assumePosix();
+        Path reference = workDir.resolve("reference.bmp");
+        Files.write(reference, new byte[0]);
+        Path output = workDir.resolve("out.bmp");
+
+        new LSB1Steganography().encode(RESOURCES.resolve("lado.bmp").toString(), DATA, output.toString());
+
+        assertEquals(Files.getPosixFilePermissions(reference), Files.getPosixFilePermissions(output));
+    }
+
+    @Test
+    void existingOutputKeepsItsPermissions() throws IOException {
+        assumePosix();
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+        Path output = workDir.resolve("out.bmp");
+        Files.write(output, new byte[0]);
+        Files.setPosixFilePermissions(output, permissions);
+
+        new LSB1Steganography().encode(RESOURCES.resolve("lado.bmp").toString(), DATA, output.toString());
+
+        assertEquals(permissions, Files.getPosixFilePermissions(output));
+    }
+
+    private static void assumePosix() {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+    }
+
+    private Set<Path> files() throws IOException {
+        try (Stream<Path> files = Files.list(workDir)) {
+            return Set.copyOf(files.toList());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package verification;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import steganography.SteganographyInterface;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the examples given by the course (catedra/ejemplo2024*): every one of them must extract the same PNG,
+ * and hiding that PNG again in lado.bmp must give back the example byte for byte.
+ */
+class GoldenFileTest {
+
+    // Every example hides the same image
+    private static final int HIDDEN_FILE_SIZE = 44886;
+    private static final String HIDDEN_FILE_EXTENSION = ".png";
+    private static final String HIDDEN_FILE_SHA256 = "b93be15382f35f099ca286241dd7bb6e681d5bce8d315ac0b6240f0b516f549d";
+    private static final String PASSWORD = "margarita";
+    private static final Path EXAMPLES = Path.of("src", "main", "resources", "catedra");
+
+    @TempDir
+    Path workDir;
+
+    static Stream<Arguments> examples() {
+        Stream.Builder<Arguments> examples = Stream.builder();
+        for (String example : new String[]{"ejemplo2024sinEnc", "ejemplo2024"}) {
+            for (String method : RoundTripTest.METHODS) {
+                examples.add(Arguments.of(example, "lado" + method + ".bmp", method, null, null));
+            }
+        }
+        examples.add(Arguments.of("ejemplo2024", "ladoLSBIaes256ofb.bmp", "LSBI", "aes256", "ofb"));
+        // The example uses 8-bit CFB, plain "cfb" on DESede means 64-bit CFB
+        examples.add(Arguments.of("ejemplo2024", "ladoLSBIdescfb.bmp", "LSBI", "3des", "cfb8"));
+        return examples.build();
+    }
+
+    @ParameterizedTest(name = "{0}/{1}")
+    @MethodSource("examples")
+    void extractsHiddenFile(String example, String fileName, String method, String algorithm, String mode) throws Exception {
+        Path stegoImage = EXAMPLES.resolve(example).resolve(fileName);
+        HiddenFile hidden = HiddenFile.fromHiddenBytes(RoundTripTest.steganography(method).decode(stegoImage.toString()), algorithm, mode, PASSWORD);
+
+        assertEquals(HIDDEN_FILE_SIZE, hidden.data().length);
+        assertEquals(HIDDEN_FILE_EXTENSION, hidden.extension());
+        assertEquals(HIDDEN_FILE_SHA256, sha256(hidden.data()));
+    }
+
+    @ParameterizedTest(name = "{0}/{1}")
+    @MethodSource("examples")
+    void embedsExampleByteForByte(String example, String fileName, String method, String algorithm, String mode) throws Exception {
+        Path stegoImage = EXAMPLES.resolve(example).resolve(fileName);
+        Path coverImage = EXAMPLES.resolve(example).resolve("lado.bmp");
+        SteganographyInterface steg = RoundTripTest.steganography(method);
+        HiddenFile hidden = HiddenFile.fromHiddenBytes(steg.decode(stegoImage.toString()), algorithm, mode, PASSWORD);
+
+        Path output = workDir.resolve(fileName);
+        steg.encode(coverImage.toString(), hidden.toHiddenBytes(algorithm, mode, PASSWORD), output.toString());
+
+        assertArrayEquals(Files.readAllBytes(stegoImage), Files.readAllBytes(output));
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+    }
+}
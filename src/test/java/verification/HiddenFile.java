@@ -0,0 +1,74 @@
+package verification;
+
+import cryptography.Crypto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * File hidden in an image, with the same layout Main uses: real size || file data || extension || '\0'.
+ * When encrypted, the hidden bytes are ciphertext size || ciphertext.
+ */
+record HiddenFile(byte[] data, String extension) {
+
+    /**
+     * Builds the bytes to hide, encrypting them when an algorithm is given
+     * @param algorithm Encryption algorithm, or null for no encryption
+     */
+    byte[] toHiddenBytes(String algorithm, String mode, String password) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        dos.writeInt(data.length);
+        dos.write(data);
+        dos.write((extension + '\0').getBytes(StandardCharsets.UTF_8));
+        dos.close();
+
+        if (algorithm == null) {
+            return baos.toByteArray();
+        }
+
+        byte[] encryptedData = new Crypto(algorithm, mode, password).encryptData(baos.toByteArray());
+        ByteArrayOutputStream baosSteg = new ByteArrayOutputStream();
+        DataOutputStream dosSteg = new DataOutputStream(baosSteg);
+        dosSteg.writeInt(encryptedData.length);
+        dosSteg.write(encryptedData);
+        dosSteg.close();
+        return baosSteg.toByteArray();
+    }
+
+    /**
+     * Parses the bytes extracted from an image, decrypting them when an algorithm is given
+     * @param algorithm Encryption algorithm, or null for no encryption
+     */
+    static HiddenFile fromHiddenBytes(byte[] hiddenBytes, String algorithm, String mode, String password) throws Exception {
+        byte[] decryptedData = hiddenBytes;
+        if (algorithm != null) {
+            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(hiddenBytes));
+            byte[] encryptedData = new byte[checkSize(dis.readInt(), hiddenBytes.length)];
+            dis.readFully(encryptedData);
+            decryptedData = new Crypto(algorithm, mode, password).decryptData(encryptedData);
+        }
+
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(decryptedData));
+        byte[] data = new byte[checkSize(dis.readInt(), decryptedData.length)];
+        dis.readFully(data);
+
+        ByteArrayOutputStream extension = new ByteArrayOutputStream();
+        int b;
+        while ((b = dis.read()) != -1 && b != 0) {
+            extension.write(b);
+        }
+        return new HiddenFile(data, extension.toString(StandardCharsets.UTF_8));
+    }
+
+    private static int checkSize(int size, int available) {
+        if (size < 0 || (long) size + 4 > available) {
+            throw new IllegalArgumentException("Size is greater than the data size");
+        }
+        return size;
+    }
+}
@@ -0,0 +1,159 @@
+package verification;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * Creates carrier images filled with random pixels, in every supported format.
+ */
+final class RandomCarriers {
+
+    enum Format {
+        BMP(".bmp"),
+        PNG_RGB(".png"),
+        PNG_RGBA(".png"),
+        PPM(".ppm"),
+        TGA_24(".tga"),
+        TGA_32(".tga");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        String extension() {
+            return extension;
+        }
+    }
+
+    /**
+     * Carrier written by create. Pixel offset and length locate the pixel data of the uncompressed formats,
+     * BMP row padding included; they are 0 for PNG
+     */
+    record Generated(String path, Format format, int width, int height, int pixelOffset, int pixelLength) {
+    }
+
+    private static final byte[] TGA_ID = "random".getBytes(StandardCharsets.US_ASCII);
+
+    private RandomCarriers() {
+    }
+
+    /**
+     * Writes a carrier with random pixels
+     * @param dir Directory for the image
+     * @param name File name, without extension
+     * @return The image and where its pixel data is
+     */
+    static Generated create(Path dir, String name, Format format, int width, int height, Random random) throws IOException {
+        Path path = dir.resolve(name + format.extension());
+        byte[] bytes = switch (format) {
+            case BMP -> bmp(width, height, random);
+            case PNG_RGB -> png(BufferedImage.TYPE_3BYTE_BGR, width, height, random);
+            case PNG_RGBA -> png(BufferedImage.TYPE_4BYTE_ABGR, width, height, random);
+            case PPM -> ppm(width, height, random);
+            case TGA_24 -> tga(24, width, height, random);
+            case TGA_32 -> tga(32, width, height, random);
+        };
+        Files.write(path, bytes);
+
+        return switch (format) {
+            case BMP -> new Generated(path.toString(), format, width, height, 54, ((width * 3 + 3) & ~3) * height);
+            case PNG_RGB, PNG_RGBA -> new Generated(path.toString(), format, width, height, 0, 0);
+            case PPM -> new Generated(path.toString(), format, width, height, ppmHeader(width, height).length, width * height * 3);
+            case TGA_24 -> new Generated(path.toString(), format, width, height, 18 + TGA_ID.length, width * height * 3);
+            case TGA_32 -> new Generated(path.toString(), format, width, height, 18 + TGA_ID.length, width * height * 4);
+        };
+    }
+
+    // 24-bit BI_RGB, rows padded to 4 bytes
+    private static byte[] bmp(int width, int height, Random random) {
+        int rowSize = (width * 3 + 3) & ~3;
+        int pixelDataOffset = 54;
+        int fileSize = pixelDataOffset + rowSize * height;
+
+        ByteBuffer buffer = ByteBuffer.allocate(fileSize).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 'B').put((byte) 'M').putInt(fileSize).putInt(0).putInt(pixelDataOffset);
+        buffer.putInt(40).putInt(width).putInt(height).putShort((short) 1).putShort((short) 24)
+                .putInt(0).putInt(rowSize * height).putInt(2835).putInt(2835).putInt(0).putInt(0);
+
+        byte[] bytes = buffer.array();
+        for (int row = 0; row < height; row++) {
+            int start = pixelDataOffset + row * rowSize;
+            for (int i = 0; i < width * 3; i++) {
+                bytes[start + i] = (byte) random.nextInt(256);
+            }
+        }
+        return bytes;
+    }
+
+    private static byte[] png(int type, int width, int height, Random random) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, type);
+        random.nextBytes(((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, "png", out)) {
+            throw new IllegalStateException("No PNG writer available");
+        }
+
+        // Add text chunks before and after the image data, both must survive embedding
+        byte[] png = out.toByteArray();
+        int afterHeader = 8 + 12 + 13; // Signature and IHDR
+        int beforeEnd = png.length - 12; // IEND
+        ByteArrayOutputStream withText = new ByteArrayOutputStream();
+        withText.write(png, 0, afterHeader);
+        withText.write(pngChunk("tEXt", "Comment\0before image data"));
+        withText.write(png, afterHeader, beforeEnd - afterHeader);
+        withText.write(pngChunk("tEXt", "Comment\0after image data"));
+        withText.write(png, beforeEnd, png.length - beforeEnd);
+        return withText.toByteArray();
+    }
+
+    private static byte[] pngChunk(String type, String data) {
+        byte[] typeAndData = (type + data).getBytes(StandardCharsets.ISO_8859_1);
+        CRC32 crc = new CRC32();
+        crc.update(typeAndData);
+        return ByteBuffer.allocate(typeAndData.length + 8)
+                .putInt(typeAndData.length - 4).put(typeAndData).putInt((int) crc.getValue()).array();
+    }
+
+    private static byte[] ppm(int width, int height, Random random) {
+        byte[] header = ppmHeader(width, height);
+        byte[] bytes = new byte[header.length + width * height * 3];
+        System.arraycopy(header, 0, bytes, 0, header.length);
+        for (int i = header.length; i < bytes.length; i++) {
+            bytes[i] = (byte) random.nextInt(256);
+        }
+        return bytes;
+    }
+
+    private static byte[] ppmHeader(int width, int height) {
+        return ("P6\n# random carrier\n" + width + " " + height + "\n255\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Uncompressed true-colour with an image ID and a TGA 2.0 footer, both must survive embedding
+    private static byte[] tga(int pixelDepth, int width, int height, Random random) {
+        byte[] footer = "\0\0\0\0\0\0\0\0TRUEVISION-XFILE.\0".getBytes(StandardCharsets.US_ASCII);
+        int pixelBytes = width * height * pixelDepth / 8;
+
+        ByteBuffer buffer = ByteBuffer.allocate(18 + TGA_ID.length + pixelBytes + footer.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) TGA_ID.length).put((byte) 0).put((byte) 2).put(new byte[5]).putShort((short) 0).putShort((short) 0)
+                .putShort((short) width).putShort((short) height).put((byte) pixelDepth).put((byte) (pixelDepth == 32 ? 8 : 0));
+        buffer.put(TGA_ID);
+        byte[] pixels = new byte[pixelBytes];
+        random.nextBytes(pixels);
+        buffer.put(pixels);
+        buffer.put(footer);
+        return buffer.array();
+    }
+}
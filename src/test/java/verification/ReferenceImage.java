@@ -0,0 +1,124 @@
+package verification;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Image read without the carrier package, to check what it writes: PNG through ImageIO,
+ * the uncompressed formats straight from the offsets RandomCarriers used to create them.
+ * @param colors Blue, Green and Red of every pixel in file order; for BMP the raw pixel data, row padding included
+ * @param alpha Alpha of every pixel in file order, empty when the format has none
+ * @param otherBytes Everything that is not pixel data: header and trailer, or every PNG chunk except IDAT
+ */
+record ReferenceImage(byte[] colors, byte[] alpha, List<byte[]> otherBytes) {
+
+    private static final int PNG_SIGNATURE_SIZE = 8;
+
+    static ReferenceImage read(RandomCarriers.Generated carrier, Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        return switch (carrier.format()) {
+            case PNG_RGB, PNG_RGBA -> readPng(bytes, carrier.format() == RandomCarriers.Format.PNG_RGBA);
+            case BMP, PPM, TGA_24 -> readRaw(carrier, bytes, false);
+            case TGA_32 -> readRaw(carrier, bytes, true);
+        };
+    }
+
+    private static ReferenceImage readRaw(RandomCarriers.Generated carrier, byte[] bytes, boolean withAlpha) {
+        int start = carrier.pixelOffset();
+        int end = start + carrier.pixelLength();
+        if (end > bytes.length) {
+            throw new IllegalArgumentException("Image shorter than its pixel data");
+        }
+        List<byte[]> otherBytes = List.of(Arrays.copyOfRange(bytes, 0, start), Arrays.copyOfRange(bytes, end, bytes.length));
+        byte[] pixels = Arrays.copyOfRange(bytes, start, end);
+
+        if (carrier.format() == RandomCarriers.Format.PPM) {
+            for (int i = 0; i < pixels.length; i += 3) {
+                byte red = pixels[i];
+                pixels[i] = pixels[i + 2];
+                pixels[i + 2] = red;
+            }
+        }
+        if (!withAlpha) {
+            return new ReferenceImage(pixels, new byte[0], otherBytes);
+        }
+
+        byte[] colors = new byte[pixels.length / 4 * 3];
+        byte[] alpha = new byte[pixels.length / 4];
+        for (int pixel = 0; pixel < alpha.length; pixel++) {
+            System.arraycopy(pixels, pixel * 4, colors, pixel * 3, 3);
+            alpha[pixel] = pixels[pixel * 4 + 3];
+        }
+        return new ReferenceImage(colors, alpha, otherBytes);
+    }
+
+    // Every chunk must have a valid CRC, and ImageIO must be able to decode the image data
+    private static ReferenceImage readPng(byte[] bytes, boolean withAlpha) throws IOException {
+        List<byte[]> otherBytes = new ArrayList<>();
+        otherBytes.add(Arrays.copyOf(bytes, PNG_SIGNATURE_SIZE));
+
+        DataInputStream chunks = new DataInputStream(new ByteArrayInputStream(bytes, PNG_SIGNATURE_SIZE, bytes.length));
+        String type;
+        do {
+            int length = chunks.readInt();
+            byte[] typeAndData = new byte[4 + length];
+            chunks.readFully(typeAndData);
+            int crc = chunks.readInt();
+
+            CRC32 expected = new CRC32();
+            expected.update(typeAndData);
+            type = new String(typeAndData, 0, 4, StandardCharsets.US_ASCII);
+            if ((int) expected.getValue() != crc) {
+                throw new IllegalArgumentException("Invalid CRC in PNG chunk " + type);
+            }
+            if (!type.equals("IDAT")) {
+                otherBytes.add(typeAndData);
+            }
+        } while (!type.equals("IEND"));
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+        ByteArrayOutputStream colors = new ByteArrayOutputStream();
+        ByteArrayOutputStream alpha = new ByteArrayOutputStream();
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int argb = image.getRGB(x, y);
+                colors.write(argb);
+                colors.write(argb >> 8);
+                colors.write(argb >> 16);
+                if (withAlpha) {
+                    alpha.write(argb >>> 24);
+                }
+            }
+        }
+        return new ReferenceImage(colors.toByteArray(), alpha.toByteArray(), otherBytes);
+    }
+
+    static int idatChunks(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        DataInputStream chunks = new DataInputStream(new ByteArrayInputStream(bytes, PNG_SIGNATURE_SIZE, bytes.length));
+        int count = 0;
+        String type;
+        do {
+            int length = chunks.readInt();
+            byte[] typeBytes = new byte[4];
+            chunks.readFully(typeBytes);
+            chunks.skipNBytes(length + 4L);
+            type = new String(typeBytes, StandardCharsets.US_ASCII);
+            if (type.equals("IDAT")) {
+                count++;
+            }
+        } while (!type.equals("IEND"));
+        return count;
+    }
+}
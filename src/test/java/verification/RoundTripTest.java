@@ -0,0 +1,251 @@
+package verification;
+
+import cryptography.Crypto;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import steganography.LSB1Steganography;
+import steganography.LSB4Steganography;
+import steganography.LSBISteganography;
+import steganography.SteganographyInterface;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Randomized round trips: random carriers of every format with every method, from 0 bytes up to full capacity,
+ * every algorithm and mode on its own, and the whole embed/extract pipeline with every combination.
+ * Set -Dverification.seed to reproduce a failing run and -Dverification.iterations for more carriers per case.
+ */
+class RoundTripTest {
+
+    static final String[] METHODS = {"LSB1", "LSB4", "LSBI"};
+    static final String[] ALGORITHMS = {"aes128", "aes192", "aes256", "3des"};
+    static final String[] MODES = {"ecb", "cbc", "cfb", "ofb", "cfb8"};
+
+    private static final long SEED = Long.getLong("verification.seed", System.nanoTime());
+    private static final int ITERATIONS = Integer.getInteger("verification.iterations", 5);
+    private static final int MAX_CARRIER_SIDE = 64;
+    private static final int LARGE_CARRIER_WIDTH = 257; // 257 * 131 * 3 pixel bytes, above every block size
+    private static final int LARGE_CARRIER_HEIGHT = 131;
+    private static final int MAX_CRYPTO_SIZE = 4096;
+    private static final String PASSWORD = "verification";
+    private static final String EXTENSION = ".bin";
+
+    @TempDir
+    Path workDir;
+
+    @BeforeAll
+    static void printSeed() {
+        // Print the seed so a failing run can be reproduced
+        System.out.println("RoundTripTest seed: " + SEED);
+    }
+
+    static SteganographyInterface steganography(String method) {
+        return switch (method) {
+            case "LSB1" -> new LSB1Steganography();
+            case "LSB4" -> new LSB4Steganography();
+            case "LSBI" -> new LSBISteganography();
+            default -> throw new IllegalArgumentException("Not a valid Steganography method");
+        };
+    }
+
+    static Stream<String> methods() {
+        return Arrays.stream(METHODS);
+    }
+
+    static Stream<Arguments> formatsAndMethods() {
+        return Arrays.stream(RandomCarriers.Format.values())
+                .flatMap(format -> Arrays.stream(METHODS).map(method -> Arguments.of(format, method)));
+    }
+
+    static Stream<Arguments> algorithmsAndModes() {
+        return Arrays.stream(ALGORITHMS).flatMap(algorithm -> Arrays.stream(MODES).map(mode -> Arguments.of(algorithm, mode)));
+    }
+
+    static Stream<Arguments> pipelines() {
+        return Arrays.stream(METHODS).flatMap(method -> Stream.concat(
+                Stream.of(Arguments.of(method, null, null)),
+                algorithmsAndModes().map(arguments -> Arguments.of(method, arguments.get()[0], arguments.get()[1]))));
+    }
+
+    // Hidden bytes must come back first in the decoded data, and only the LSBs the method uses may change
+    @ParameterizedTest(name = "{1} {0}")
+    @MethodSource("formatsAndMethods")
+    void hiddenDataRoundTrips(RandomCarriers.Format format, String method) throws Exception {
+        Random random = random(format + method);
+        SteganographyInterface steg = steganography(method);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            int width = 1 + random.nextInt(MAX_CARRIER_SIDE);
+            int height = 1 + random.nextInt(MAX_CARRIER_SIDE);
+            roundTrip(steg, method, RandomCarriers.create(workDir, "carrier", format, width, height, random), random);
+        }
+    }
+
+    // Larger than every block the methods process at a time, with an odd width so rows, blocks and
+    // LSBI's 12-byte groups never line up; PNG image data is then split across several IDAT chunks
+    @ParameterizedTest(name = "{1} {0}")
+    @MethodSource("formatsAndMethods")
+    void largeCarrierRoundTrips(RandomCarriers.Format format, String method) throws Exception {
+        Random random = random("large" + format + method);
+        RandomCarriers.Generated carrier = RandomCarriers.create(workDir, "large", format, LARGE_CARRIER_WIDTH, LARGE_CARRIER_HEIGHT, random);
+        if (carrier.format() == RandomCarriers.Format.PNG_RGB || carrier.format() == RandomCarriers.Format.PNG_RGBA) {
+            assertTrue(ReferenceImage.idatChunks(Path.of(carrier.path())) > 1, "PNG with a single IDAT chunk");
+        }
+        roundTrip(steganography(method), method, carrier, random);
+    }
+
+    // RGBA image with two IDAT chunks, saved by another encoder
+    @ParameterizedTest
+    @MethodSource("methods")
+    void blockbusterRoundTrips(String method) throws Exception {
+        Path path = Path.of("src", "main", "resources", "blockbuster.png");
+        assertTrue(ReferenceImage.idatChunks(path) > 1, "PNG with a single IDAT chunk");
+        RandomCarriers.Generated carrier = new RandomCarriers.Generated(path.toString(), RandomCarriers.Format.PNG_RGBA, 500, 281, 0, 0);
+        roundTrip(steganography(method), method, carrier, random("blockbuster" + method));
+    }
+
+    // From 0 bytes up to full capacity, and one byte more must be rejected
+    private void roundTrip(SteganographyInterface steg, String method, RandomCarriers.Generated generated, Random random) throws Exception {
+        String carrier = generated.path();
+        String output = workDir.resolve("stego" + generated.format().extension()).toString();
+        int capacity = steg.capacity(carrier);
+        String carrierName = generated.width() + "x" + generated.height();
+
+        TreeSet<Integer> sizes = new TreeSet<>();
+        sizes.add(0);
+        sizes.add(Math.min(1, capacity));
+        sizes.add(Math.max(0, capacity - 1));
+        sizes.add(capacity);
+        sizes.add(random.nextInt(capacity + 1));
+
+        for (int size : sizes) {
+            String name = carrierName + " size=" + size + "/" + capacity + " seed=" + SEED;
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+
+            steg.encode(carrier, data, output);
+            byte[] decoded = steg.decode(output);
+
+            assertEquals(capacity, decoded.length, name);
+            assertArrayEquals(data, Arrays.copyOf(decoded, size), name);
+            assertOnlyHiddenBitsChanged(generated, output, method, data, name);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> steg.encode(carrier, new byte[capacity + 1], output),
+                carrierName + " over capacity, seed=" + SEED);
+    }
+
+    @ParameterizedTest(name = "{0} {1}")
+    @MethodSource("algorithmsAndModes")
+    void cryptoRoundTrips(String algorithm, String mode) throws Exception {
+        Random random = random(algorithm + mode);
+        Crypto crypto = new Crypto(algorithm, mode, PASSWORD);
+
+        for (int size : new TreeSet<>(Arrays.asList(0, 1, 7, 8, 15, 16, 17, random.nextInt(MAX_CRYPTO_SIZE)))) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            assertArrayEquals(data, crypto.decryptData(crypto.encryptData(data)), "size=" + size + " seed=" + SEED);
+        }
+    }
+
+    // Embeds the smallest and the largest file that fit, packed the same way Main does
+    @ParameterizedTest(name = "{0} {1} {2}")
+    @MethodSource("pipelines")
+    void pipelineRoundTrips(String method, String algorithm, String mode) throws Exception {
+        Random random = random(method + algorithm + mode);
+        SteganographyInterface steg = steganography(method);
+        RandomCarriers.Format format = RandomCarriers.Format.values()[random.nextInt(RandomCarriers.Format.values().length)];
+        String carrier = RandomCarriers.create(workDir, "pipeline", format, 64, 48, random).path();
+        String output = workDir.resolve("pipeline-stego" + format.extension()).toString();
+        int maxSize = maxFileSize(steg.capacity(carrier), algorithm, mode);
+
+        for (int size : new int[]{0, maxSize}) {
+            String name = format + " size=" + size + " seed=" + SEED;
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+
+            steg.encode(carrier, new HiddenFile(data, EXTENSION).toHiddenBytes(algorithm, mode, PASSWORD), output);
+            HiddenFile extracted = HiddenFile.fromHiddenBytes(steg.decode(output), algorithm, mode, PASSWORD);
+
+            assertArrayEquals(data, extracted.data(), name);
+            assertEquals(EXTENSION, extracted.extension(), name);
+        }
+
+        // One more byte must be rejected, so maxSize really is full capacity
+        byte[] hidden = new HiddenFile(new byte[maxSize + 1], EXTENSION).toHiddenBytes(algorithm, mode, PASSWORD);
+        assertThrows(IllegalArgumentException.class, () -> steg.encode(carrier, hidden, output),
+                format + " size=" + (maxSize + 1) + " seed=" + SEED);
+    }
+
+    // Each case gets its own generator, so it can be reproduced on its own with the same seed
+    private static Random random(String testCase) {
+        return new Random(SEED ^ testCase.hashCode());
+    }
+
+    // Size field, extension and '\0' around the file; ciphertext size and padding when encrypted
+    private static int maxFileSize(int capacity, String algorithm, String mode) {
+        int overhead = 4 + EXTENSION.length() + 1;
+        if (algorithm == null) {
+            return capacity - overhead;
+        }
+        int maxCiphertext = capacity - 4;
+        if (mode.equals("ecb") || mode.equals("cbc")) {
+            int blockSize = algorithm.equals("3des") ? 8 : 16;
+            return (maxCiphertext / blockSize) * blockSize - 1 - overhead; // PKCS5 always adds at least one byte
+        }
+        return maxCiphertext - overhead;
+    }
+
+    // Compares cover and stego read without the carrier package: everything but the pixel data must be equal,
+    // and each colour byte may only change in the bits the method uses
+    private static void assertOnlyHiddenBitsChanged(RandomCarriers.Generated carrier, String output, String method,
+                                                    byte[] data, String name) throws IOException {
+        ReferenceImage cover = ReferenceImage.read(carrier, Path.of(carrier.path()));
+        ReferenceImage stego = ReferenceImage.read(carrier, Path.of(output));
+
+        assertEquals(cover.otherBytes().size(), stego.otherBytes().size(), name);
+        for (int i = 0; i < cover.otherBytes().size(); i++) {
+            assertArrayEquals(cover.otherBytes().get(i), stego.otherBytes().get(i), name + " non-pixel bytes " + i);
+        }
+        assertArrayEquals(cover.alpha(), stego.alpha(), name + " alpha");
+        assertEquals(cover.colors().length, stego.colors().length, name);
+
+        int allowedBits = method.equals("LSB4") ? 0x0F : 0x01;
+        // LSBI never hides data in Red, the third byte of each pixel, once past the 4 pattern flag bytes.
+        // BMP rows with padding shift the pixels in the carrier stream, so Red can only be located without padding
+        boolean checkRed = method.equals("LSBI")
+                && (carrier.format() != RandomCarriers.Format.BMP || carrier.width() * 3 % 4 == 0);
+        for (int i = 0; i < cover.colors().length; i++) {
+            int changed = (cover.colors()[i] ^ stego.colors()[i]) & 0xFF;
+            if ((changed & ~allowedBits) != 0) {
+                fail(name + " byte " + i + " changed outside the hidden bits");
+            }
+            if (checkRed && i > 4 && i % 3 == 2 && changed != 0) {
+                fail(name + " Red of pixel " + i / 3 + " changed");
+            }
+        }
+
+        // LSB1 is simple enough to decode here: one bit per colour byte, most significant first
+        if (method.equals("LSB1")) {
+            byte[] decoded = new byte[data.length];
+            for (int i = 0; i < data.length * 8; i++) {
+                decoded[i / 8] = (byte) ((decoded[i / 8] << 1) | (stego.colors()[i] & 1));
+            }
+            assertArrayEquals(data, decoded, name + " LSB1 bit order");
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package verification;
+
+import carrier.Carrier;
+import cryptography.Crypto;
+import steganography.SteganographyInterface;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Measures encode and decode speed of every method on every carrier format at full capacity,
+ * and encryption and decryption speed of every algorithm and mode.
+ * Every result is checked after the timed runs, so no speed is reported for output that does not decode.
+ * Run after mvn test-compile: java -cp target/classes:target/test-classes verification.ThroughputReport [-seed n] [-side pixels]
+ */
+public final class ThroughputReport {
+    private static final String SEED = "-seed";
+    private static final String CARRIER_SIDE = "-side"; // Side length of the square carriers, in pixels
+
+    private static final int WARMUP_RUNS = 2;
+    private static final int MEASURED_RUNS = 5;
+    private static final int CRYPTO_SIZE = 1024 * 1024;
+    private static final double MB = 1024 * 1024;
+    private static final String PASSWORD = "verification";
+
+    private final Path workDir;
+    private final Random random;
+    private final int carrierSide;
+    private int mismatches;
+
+    private ThroughputReport(Path workDir, Random random, int carrierSide) {
+        this.workDir = workDir;
+        this.random = random;
+        this.carrierSide = carrierSide;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long seed = new Random().nextLong();
+        int carrierSide = 1024;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case SEED -> seed = Long.parseLong(args[++i]);
+                case CARRIER_SIDE -> carrierSide = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        System.out.println("Seed: " + seed);
+        Path workDir = Files.createTempDirectory("stego-throughput");
+        try {
+            ThroughputReport report = new ThroughputReport(workDir, new Random(seed), carrierSide);
+            report.run();
+            if (report.mismatches > 0) {
+                System.out.println(report.mismatches + " configurations did not give back their input");
+                System.exit(1);
+            }
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    private void run() throws Exception {
+        System.out.printf("%nSteganography, %dx%d carriers at full capacity (MB/s of hidden data / of pixel data)%n", carrierSide, carrierSide);
+        System.out.printf("%-6s %-10s %12s %20s %20s%n", "Method", "Carrier", "Hidden", "Encode MB/s", "Decode MB/s");
+        for (RandomCarriers.Format format : RandomCarriers.Format.values()) {
+            String carrier = RandomCarriers.create(workDir, "throughput", format, carrierSide, carrierSide, random).path();
+            long pixelBytes;
+            try (Carrier cover = Carrier.open(carrier)) {
+                pixelBytes = cover.pixelBytes();
+            }
+            String output = workDir.resolve("throughput-stego" + format.extension()).toString();
+
+            for (String method : RoundTripTest.METHODS) {
+                SteganographyInterface steg = RoundTripTest.steganography(method);
+                byte[] data = new byte[steg.capacity(carrier)];
+                random.nextBytes(data);
+
+                byte[][] decoded = new byte[1][];
+                double encodeSeconds = measure(() -> steg.encode(carrier, data, output));
+                double decodeSeconds = measure(() -> decoded[0] = steg.decode(output));
+                System.out.printf("%-6s %-10s %12d %9.1f / %8.1f %9.1f / %8.1f%s%n", method, format, data.length,
+                        data.length / MB / encodeSeconds, pixelBytes / MB / encodeSeconds,
+                        data.length / MB / decodeSeconds, pixelBytes / MB / decodeSeconds,
+                        check(Arrays.equals(data, Arrays.copyOf(decoded[0], data.length))));
+            }
+        }
+
+        System.out.printf("%nCryptography, %d MB including key derivation%n", CRYPTO_SIZE / (1024 * 1024));
+        System.out.printf("%-8s %-6s %12s %12s%n", "Algo", "Mode", "Encrypt MB/s", "Decrypt MB/s");
+        byte[] data = new byte[CRYPTO_SIZE];
+        random.nextBytes(data);
+        for (String algorithm : RoundTripTest.ALGORITHMS) {
+            for (String mode : RoundTripTest.MODES) {
+                Crypto crypto = new Crypto(algorithm, mode, PASSWORD);
+                byte[][] encrypted = new byte[1][];
+                byte[][] decrypted = new byte[1][];
+                double encryptSeconds = measure(() -> encrypted[0] = crypto.encryptData(data));
+                double decryptSeconds = measure(() -> decrypted[0] = crypto.decryptData(encrypted[0]));
+                System.out.printf("%-8s %-6s %12.1f %12.1f%s%n", algorithm, mode,
+                        CRYPTO_SIZE / MB / encryptSeconds, CRYPTO_SIZE / MB / decryptSeconds,
+                        check(Arrays.equals(data, decrypted[0])));
+            }
+        }
+    }
+
+    // Flags the row of a configuration whose output does not give back its input
+    private String check(boolean matches) {
+        if (matches) {
+            return "";
+        }
+        mismatches++;
+        return "  MISMATCH";
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    // Average time in seconds of the measured runs, after a few warmup runs for the JIT
+    private static double measure(Task task) throws Exception {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            task.run();
+        }
+        return (System.nanoTime() - start) / 1e9 / MEASURED_RUNS;
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}